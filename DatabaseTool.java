@@ -1,9 +1,14 @@
 package tools;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import javax.swing.JTable;
 import javax.swing.table.DefaultTableModel; 
+import javax.swing.table.TableColumn;
+import javax.swing.table.TableColumnModel;
+import javax.swing.table.TableModel;
 
 /**
  * Do database-related events with this class tool.
@@ -17,6 +22,8 @@ public final class DatabaseTool {
     private static String CLASS_NAME = null;
     private static String USER = null;
     private static String PASSWORD = null;
+    private static int HEAP_ROWS = RowBuffer.DEFAULT_HEAP_ROWS;
+    private static long OFF_HEAP_BYTES = RowBuffer.DEFAULT_OFF_HEAP_BYTES;
     
     /**
      * Sets class name.
@@ -38,6 +45,19 @@ public final class DatabaseTool {
         PASSWORD = password;
     }
     
+    /**
+     * Sets memory budgets of row buffers.
+     * @param heapRows number of rows kept on the heap before spilling
+     * @param offHeapBytes number of bytes kept off-heap before spilling to a file
+     * @throws IllegalArgumentException if a limit is negative
+     */
+    public static final void setRowBufferLimits(int heapRows, long offHeapBytes) {
+        if (heapRows < 0 || offHeapBytes < 0)
+            throw new IllegalArgumentException("Negative row buffer size.");
+        HEAP_ROWS = heapRows;
+        OFF_HEAP_BYTES = offHeapBytes;
+    }
+    
     /**
      * Establishes a connection.
      * @return database connection
@@ -102,6 +122,77 @@ public final class DatabaseTool {
         return list;
     }
     
+    /**
+     * Gets buffer of rows based on query.
+     * @param query to be executed
+     * @return returns rows of query (must be closed after use)
+     * @throws IOException if rows cannot be spilled off-heap
+     */
+    public static final RowBuffer getBufferOf(String query) throws IOException {
+        return getBufferOf(query, 0, 0);
+    }
+    
+    /**
+     * Gets buffer of rows based on query.
+     * @param query to be executed
+     * @param start starts at specified column (starts with 0)
+     * @return returns rows of query (must be closed after use)
+     * @throws IOException if rows cannot be spilled off-heap
+     */
+    public static final RowBuffer getBufferOf(String query, int start) throws IOException {
+        return getBufferOf(query, start, 0);
+    }
+    
+    /**
+     * Gets buffer of rows based on query.
+     * Rows beyond the limits set by setRowBufferLimits are stored off-heap.
+     * Returns null if the query fails or the columns are out of range.
+     * @param query to be executed
+     * @param start starts at specified column (starts with 0)
+     * @param length number of columns to be returned
+     * @return returns rows of query (must be closed after use)
+     * @throws IOException if rows cannot be spilled off-heap
+     */
+    public static final RowBuffer getBufferOf(String query, int start, int length) throws IOException {
+        RowBuffer buffer = null;
+        try (Connection con = getConnection()) {
+            Statement stmt = con.createStatement();
+            ResultSet rs = stmt.executeQuery(query);
+            ResultSetMetaData meta = rs.getMetaData();
+            
+            int count = meta.getColumnCount() - start;
+            if (start < 0 || count <= 0)
+                return null;
+            length = (length <= 0) ? count : length;
+            
+            if (length <= count) {
+                String[] names = new String[length];
+                for (int i = 0; i < length; i++)
+                    names[i] = meta.getColumnLabel(i+1 + start);
+                buffer = new RowBuffer(length, HEAP_ROWS, OFF_HEAP_BYTES);
+                buffer.setColumnNames(names);
+                while (rs.next()) {
+                    Object[] row = new Object[length];
+                    for (int i = 0; i < length; i++)
+                        row[i] = rs.getObject(i+1 + start);
+                    buffer.add(row);
+                }
+            }
+        } catch (SQLException e) {
+            if (buffer != null)
+                buffer.close();
+            buffer = null;
+        } catch (IOException e) {
+            try {
+                buffer.close();
+            } catch (IOException ex) {
+                e.addSuppressed(ex);
+            }
+            throw e;
+        }
+        return buffer;
+    }
+    
     /**
      * Writes rows into specified table.
      * @param table the table to be written in
@@ -129,15 +220,45 @@ public final class DatabaseTool {
      * @param length number of columns to be returned
      */
     public static final void writeRowsInto(JTable table, String query, int start, int length) {
-        ArrayList<Object[]> list = getListOf(query, start, length);
         DefaultTableModel model = (DefaultTableModel)table.getModel();
         model.setRowCount(0);
-        try {
-            for (int i = 0; i < list.size(); i++)
-                model.addRow(list.get(i));
+        try (RowBuffer rows = getBufferOf(query, start, length)) {
+            for (Object[] row : rows)
+                model.addRow(row);
         } catch(Exception e) {}
     }
     
+    /**
+     * Shows rows in specified table without copying them into the table's model.
+     * Unlike the other writeRowsInto methods, the table's model is replaced by a
+     * read-only one that decodes rows only when displayed. The table's columns,
+     * such as headers, renderers and widths, are kept if their count matches.
+     * The rows stay owned by the caller and can be shown in several tables;
+     * close them only after every table showing them has a different model.
+     * @param table the table to be written in
+     * @param rows the rows to be written in the table (clears the table if null)
+     */
+    public static final void writeRowsInto(JTable table, RowBuffer rows) {
+        if (rows == null) {
+            if (table.getModel() instanceof DefaultTableModel)
+                ((DefaultTableModel)table.getModel()).setRowCount(0);
+            else
+                table.setModel(new DefaultTableModel());
+            return;
+        }
+        
+        TableModel model = rows.toTableModel();
+        ArrayList<TableColumn> columns = Collections.list(table.getColumnModel().getColumns());
+        table.setModel(model);
+        if (columns.size() == model.getColumnCount()) {
+            TableColumnModel columnModel = table.getColumnModel();
+            while (columnModel.getColumnCount() > 0)
+                columnModel.removeColumn(columnModel.getColumn(0));
+            for (TableColumn column : columns)
+                columnModel.addColumn(column);
+        }
+    }
+    
     /**
      * Executes an SQL command.
      * @param sql SQL command to be executed
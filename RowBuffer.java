@@ -0,0 +1,544 @@
+package tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Holds rows of a query result within a memory budget.
+ * The first rows are kept on the heap as they are. Rows beyond the heap budget
+ * are serialized into off-heap buffers, and rows beyond the off-heap budget
+ * are written into a memory-mapped temporary file.
+ * @author Arnesfield
+ */
+public final class RowBuffer implements Iterable<Object[]>, Closeable {
+
+    /** Default number of rows kept on the heap. */
+    public static final int DEFAULT_HEAP_ROWS = 10000;
+    /** Default number of bytes kept in off-heap buffers. */
+    public static final long DEFAULT_OFF_HEAP_BYTES = 64L << 20;
+
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private static final byte NULL = 0;
+    private static final byte BOOLEAN = 1;
+    private static final byte BYTE = 2;
+    private static final byte SHORT = 3;
+    private static final byte INT = 4;
+    private static final byte LONG = 5;
+    private static final byte FLOAT = 6;
+    private static final byte DOUBLE = 7;
+    private static final byte STRING = 8;
+    private static final byte DECIMAL = 9;
+    private static final byte DATE = 10;
+    private static final byte TIME = 11;
+    private static final byte TIMESTAMP = 12;
+    private static final byte BYTES = 13;
+    private static final byte BIG_INTEGER = 14;
+    private static final byte UTIL_DATE = 15;
+    private static final byte CHAR = 16;
+    private static final byte LOCAL_DATE = 17;
+    private static final byte LOCAL_TIME = 18;
+    private static final byte LOCAL_DATE_TIME = 19;
+    private static final byte OFFSET_DATE_TIME = 20;
+
+    private final int columns;
+    private final int heapRows;
+    private final long offHeapBytes;
+
+    private String[] names = new String[0];
+    private final ArrayList<Object[]> heap = new ArrayList<>();
+    private final ArrayList<ByteBuffer> chunks = new ArrayList<>();
+    private long[] offsets = new long[0];
+    private int spilled = 0;
+    private long position = 0;
+
+    private final ByteArrayOutputStream scratch = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(scratch);
+
+    private Path file = null;
+    private FileChannel channel = null;
+    private boolean closed = false;
+
+    /**
+     * Creates a row buffer with the default budgets.
+     * @param columns number of columns of each row
+     */
+    public RowBuffer(int columns) {
+        this(columns, DEFAULT_HEAP_ROWS, DEFAULT_OFF_HEAP_BYTES);
+    }
+
+    /**
+     * Creates a row buffer.
+     * @param columns number of columns of each row
+     * @param heapRows number of rows kept on the heap before spilling
+     * @param offHeapBytes number of bytes kept off-heap before spilling to a file
+     */
+    public RowBuffer(int columns, int heapRows, long offHeapBytes) {
+        if (columns < 0 || heapRows < 0 || offHeapBytes < 0)
+            throw new IllegalArgumentException("Negative row buffer size.");
+        this.columns = columns;
+        this.heapRows = heapRows;
+        this.offHeapBytes = offHeapBytes;
+    }
+
+    /**
+     * Adds a row at the end of the buffer.
+     * Values must be null, primitive wrappers, strings, byte arrays, big numbers,
+     * or date and time values of java.util, java.sql or java.time.
+     * @param row the row to be added (copied if spilled)
+     * @throws IOException if a value is not supported or the row cannot be written
+     */
+    public void add(Object[] row) throws IOException {
+        ensureOpen();
+        if (spilled == 0 && heap.size() < heapRows) {
+            for (Object value : row)
+                typeOf(value);
+            heap.add(row);
+            return;
+        }
+
+        scratch.reset();
+        out.writeInt(row.length);
+        for (Object value : row)
+            writeValue(value);
+        out.flush();
+
+        long from = position;
+        write(scratch.toByteArray());
+
+        if (spilled == offsets.length)
+            offsets = Arrays.copyOf(offsets, Math.max(16, spilled * 2));
+        offsets[spilled++] = from;
+    }
+
+    /**
+     * Gets a row.
+     * @param index index of the row (starts with 0)
+     * @return the row at the specified index
+     */
+    public Object[] get(int index) {
+        ensureOpen();
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Row: " + index + ", Size: " + size());
+        if (index < heap.size())
+            return heap.get(index);
+
+        int i = index - heap.size();
+        long from = offsets[i];
+        long to = (i + 1 < spilled) ? offsets[i + 1] : position;
+        byte[] bytes = new byte[(int)(to - from)];
+        read(from, bytes);
+
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            Object[] row = new Object[in.readInt()];
+            for (int c = 0; c < row.length; c++)
+                row[c] = readValue(in);
+            return row;
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupted row: " + index, e);
+        }
+    }
+
+    /**
+     * Gets a value.
+     * @param row index of the row (starts with 0)
+     * @param column index of the column (starts with 0)
+     * @return the value at the specified row and column
+     */
+    public Object get(int row, int column) {
+        return get(row)[column];
+    }
+
+    /**
+     * Gets the number of rows.
+     * @return number of rows in the buffer
+     */
+    public int size() {
+        return heap.size() + spilled;
+    }
+
+    /**
+     * Sets names of the columns.
+     * @param columnNames names of the columns
+     */
+    public void setColumnNames(String... columnNames) {
+        names = columnNames.clone();
+    }
+
+    /**
+     * Gets name of a column.
+     * @param column index of the column (starts with 0)
+     * @return name of the column or null if not set
+     */
+    public String getColumnName(int column) {
+        return (column < names.length) ? names[column] : null;
+    }
+
+    /**
+     * Gets the number of columns.
+     * @return number of columns of each row
+     */
+    public int getColumnCount() {
+        return columns;
+    }
+
+    /**
+     * Checks if rows were moved out of the heap.
+     * @return true if some rows are stored off-heap or in a file
+     */
+    public boolean isSpilled() {
+        return spilled > 0;
+    }
+
+    /**
+     * Gets the temporary file of spilled rows.
+     * @return path of the temporary file or null if none was created
+     */
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the rows in order, decoding one row at a time.
+     * @return iterator of the rows
+     */
+    @Override
+    public Iterator<Object[]> iterator() {
+        return new Iterator<Object[]>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public Object[] next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return get(index++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Creates a read-only table model that decodes rows only when displayed.
+     * The buffer must stay open while the model is in use.
+     * @param columnNames names of the columns (uses names set in the buffer if omitted)
+     * @return table model backed by this buffer
+     */
+    public AbstractTableModel toTableModel(final String... columnNames) {
+        return new AbstractTableModel() {
+            private int cachedIndex = -1;
+            private Object[] cachedRow = null;
+
+            @Override
+            public int getRowCount() {
+                return size();
+            }
+
+            @Override
+            public int getColumnCount() {
+                return columns;
+            }
+
+            @Override
+            public String getColumnName(int column) {
+                if (column < columnNames.length)
+                    return columnNames[column];
+                String name = RowBuffer.this.getColumnName(column);
+                return (name != null) ? name : super.getColumnName(column);
+            }
+
+            @Override
+            public Object getValueAt(int row, int column) {
+                if (row != cachedIndex) {
+                    cachedRow = get(row);
+                    cachedIndex = row;
+                }
+                return (column < cachedRow.length) ? cachedRow[column] : null;
+            }
+        };
+    }
+
+    /**
+     * Closes the buffer and deletes the temporary file.
+     * Off-heap and mapped memory is only freed once the buffers are garbage collected.
+     * @throws IOException if the temporary file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        heap.clear();
+        chunks.clear();
+        offsets = new long[0];
+        spilled = 0;
+        position = 0;
+        if (channel != null)
+            channel.close();
+    }
+
+    private void ensureOpen() {
+        if (closed)
+            throw new IllegalStateException("Row buffer is closed.");
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            int index = (int)(position / CHUNK_SIZE);
+            if (index == chunks.size())
+                chunks.add(allocate(index));
+            ByteBuffer chunk = chunks.get(index).duplicate();
+            chunk.position((int)(position % CHUNK_SIZE));
+            int length = Math.min(chunk.remaining(), bytes.length - offset);
+            chunk.put(bytes, offset, length);
+            offset += length;
+            position += length;
+        }
+    }
+
+    private void read(long from, byte[] bytes) {
+        int offset = 0;
+        while (offset < bytes.length) {
+            ByteBuffer chunk = chunks.get((int)(from / CHUNK_SIZE)).duplicate();
+            chunk.position((int)(from % CHUNK_SIZE));
+            int length = Math.min(chunk.remaining(), bytes.length - offset);
+            chunk.get(bytes, offset, length);
+            offset += length;
+            from += length;
+        }
+    }
+
+    private ByteBuffer allocate(int index) throws IOException {
+        long start = (long)index * CHUNK_SIZE;
+        if (start + CHUNK_SIZE <= offHeapBytes)
+            return ByteBuffer.allocateDirect(CHUNK_SIZE);
+
+        if (channel == null) {
+            file = Files.createTempFile("rows", ".tmp");
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+        }
+        long fileStart = start - chunksOffHeap() * (long)CHUNK_SIZE;
+        return channel.map(FileChannel.MapMode.READ_WRITE, fileStart, CHUNK_SIZE);
+    }
+
+    private int chunksOffHeap() {
+        return (int)(offHeapBytes / CHUNK_SIZE);
+    }
+
+    private static byte typeOf(Object value) throws IOException {
+        if (value == null)
+            return NULL;
+        if (value instanceof Boolean)
+            return BOOLEAN;
+        if (value instanceof Byte)
+            return BYTE;
+        if (value instanceof Short)
+            return SHORT;
+        if (value instanceof Integer)
+            return INT;
+        if (value instanceof Long)
+            return LONG;
+        if (value instanceof Float)
+            return FLOAT;
+        if (value instanceof Double)
+            return DOUBLE;
+        if (value instanceof String)
+            return STRING;
+        if (value instanceof BigDecimal)
+            return DECIMAL;
+        if (value instanceof java.sql.Date)
+            return DATE;
+        if (value instanceof java.sql.Time)
+            return TIME;
+        if (value instanceof java.sql.Timestamp)
+            return TIMESTAMP;
+        if (value instanceof byte[])
+            return BYTES;
+        if (value instanceof BigInteger)
+            return BIG_INTEGER;
+        if (value instanceof java.util.Date)
+            return UTIL_DATE;
+        if (value instanceof Character)
+            return CHAR;
+        if (value instanceof LocalDate)
+            return LOCAL_DATE;
+        if (value instanceof LocalTime)
+            return LOCAL_TIME;
+        if (value instanceof LocalDateTime)
+            return LOCAL_DATE_TIME;
+        if (value instanceof OffsetDateTime)
+            return OFFSET_DATE_TIME;
+        throw new IOException("Unsupported value type: " + value.getClass());
+    }
+
+    private void writeValue(Object value) throws IOException {
+        byte type = typeOf(value);
+        out.writeByte(type);
+        switch (type) {
+            case NULL:
+                break;
+            case BOOLEAN:
+                out.writeBoolean((Boolean)value);
+                break;
+            case BYTE:
+                out.writeByte((Byte)value);
+                break;
+            case SHORT:
+                out.writeShort((Short)value);
+                break;
+            case INT:
+                out.writeInt((Integer)value);
+                break;
+            case LONG:
+                out.writeLong((Long)value);
+                break;
+            case FLOAT:
+                out.writeFloat((Float)value);
+                break;
+            case DOUBLE:
+                out.writeDouble((Double)value);
+                break;
+            case STRING:
+                writeBytes(((String)value).getBytes("UTF-8"));
+                break;
+            case DECIMAL:
+                writeBytes(((BigDecimal)value).toString().getBytes("UTF-8"));
+                break;
+            case DATE:
+            case TIME:
+            case UTIL_DATE:
+                out.writeLong(((java.util.Date)value).getTime());
+                break;
+            case TIMESTAMP:
+                out.writeLong(((java.sql.Timestamp)value).getTime());
+                out.writeInt(((java.sql.Timestamp)value).getNanos());
+                break;
+            case BYTES:
+                writeBytes((byte[])value);
+                break;
+            case BIG_INTEGER:
+                writeBytes(((BigInteger)value).toByteArray());
+                break;
+            case CHAR:
+                out.writeChar((Character)value);
+                break;
+            case LOCAL_DATE:
+                out.writeLong(((LocalDate)value).toEpochDay());
+                break;
+            case LOCAL_TIME:
+                out.writeLong(((LocalTime)value).toNanoOfDay());
+                break;
+            case LOCAL_DATE_TIME:
+                writeDateTime((LocalDateTime)value);
+                break;
+            case OFFSET_DATE_TIME:
+                writeDateTime(((OffsetDateTime)value).toLocalDateTime());
+                out.writeInt(((OffsetDateTime)value).getOffset().getTotalSeconds());
+                break;
+        }
+    }
+
+    private void writeDateTime(LocalDateTime value) throws IOException {
+        out.writeLong(value.toLocalDate().toEpochDay());
+        out.writeLong(value.toLocalTime().toNanoOfDay());
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        switch (in.readByte()) {
+            case NULL:
+                return null;
+            case BOOLEAN:
+                return in.readBoolean();
+            case BYTE:
+                return in.readByte();
+            case SHORT:
+                return in.readShort();
+            case INT:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            case STRING:
+                return new String(readBytes(in), "UTF-8");
+            case DECIMAL:
+                return new BigDecimal(new String(readBytes(in), "UTF-8"));
+            case DATE:
+                return new java.sql.Date(in.readLong());
+            case TIME:
+                return new java.sql.Time(in.readLong());
+            case TIMESTAMP:
+                java.sql.Timestamp timestamp = new java.sql.Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            case BYTES:
+                return readBytes(in);
+            case BIG_INTEGER:
+                return new BigInteger(readBytes(in));
+            case UTIL_DATE:
+                return new java.util.Date(in.readLong());
+            case CHAR:
+                return in.readChar();
+            case LOCAL_DATE:
+                return LocalDate.ofEpochDay(in.readLong());
+            case LOCAL_TIME:
+                return LocalTime.ofNanoOfDay(in.readLong());
+            case LOCAL_DATE_TIME:
+                return readDateTime(in);
+            case OFFSET_DATE_TIME:
+                return OffsetDateTime.of(readDateTime(in), ZoneOffset.ofTotalSeconds(in.readInt()));
+            default:
+                throw new IOException("Unknown value type.");
+        }
+    }
+
+    private static LocalDateTime readDateTime(DataInputStream in) throws IOException {
+        return LocalDateTime.of(LocalDate.ofEpochDay(in.readLong()), LocalTime.ofNanoOfDay(in.readLong()));
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+}
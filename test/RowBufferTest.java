@@ -0,0 +1,117 @@
+package tools;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Round-trip checks of RowBuffer.
+ * Run with: javac -d out *.java test/*.java && java -cp out tools.RowBufferTest
+ * @author Arnesfield
+ */
+public final class RowBufferTest {
+
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private RowBufferTest() {}
+
+    public static void main(String[] args) throws Exception {
+        everyTypeRoundTrips();
+        rowCrossesChunkBoundary();
+        rowsSpillIntoMappedFile();
+        unsupportedTypeIsRejected();
+        System.out.println("RowBufferTest passed.");
+    }
+
+    private static Object[] everyType() {
+        java.sql.Timestamp timestamp = new java.sql.Timestamp(1500000000123L);
+        timestamp.setNanos(123456789);
+        return new Object[] {
+            null, true, (byte)7, (short)-300, 42, 1L << 40, 1.5f, 2.25,
+            "text \u00e9\u4e2d", new BigDecimal("-12345.678900"),
+            new java.sql.Date(1500000000000L), new java.sql.Time(3600000L), timestamp,
+            new byte[] {1, 2, 3}, new BigInteger("123456789012345678901234567890"),
+            new java.util.Date(1500000000456L), 'x',
+            LocalDate.of(2020, 2, 29), LocalTime.of(23, 59, 59, 999999999),
+            LocalDateTime.of(1999, 12, 31, 8, 30, 1, 5),
+            OffsetDateTime.of(2021, 6, 1, 12, 0, 0, 0, ZoneOffset.ofHours(8))
+        };
+    }
+
+    private static void everyTypeRoundTrips() throws IOException {
+        Object[] row = everyType();
+        try (RowBuffer buffer = new RowBuffer(row.length, 1, RowBuffer.DEFAULT_OFF_HEAP_BYTES)) {
+            buffer.add(row);
+            buffer.add(row);
+            check(buffer.isSpilled(), "second row is spilled");
+            check(Arrays.deepEquals(buffer.get(0), buffer.get(1)), "spilled row matches heap row");
+            for (int i = 0; i < row.length; i++) {
+                Object value = buffer.get(1, i);
+                check(value == null ? row[i] == null : value.getClass() == row[i].getClass(),
+                        "type of column " + i);
+            }
+        }
+    }
+
+    private static void rowCrossesChunkBoundary() throws IOException {
+        byte[] large = new byte[CHUNK_SIZE + CHUNK_SIZE / 2];
+        for (int i = 0; i < large.length; i++)
+            large[i] = (byte)i;
+        try (RowBuffer buffer = new RowBuffer(2, 0, 4L * CHUNK_SIZE)) {
+            buffer.add(new Object[] {1, "before"});
+            buffer.add(new Object[] {2, large});
+            buffer.add(new Object[] {3, "after"});
+            check(Arrays.equals((byte[])buffer.get(1, 1), large), "row across chunks");
+            check("after".equals(buffer.get(2, 1)), "row after boundary");
+            check(buffer.getFile() == null, "no file while within off-heap budget");
+        }
+    }
+
+    private static void rowsSpillIntoMappedFile() throws IOException {
+        int rows = 100000;
+        RowBuffer buffer = new RowBuffer(3, 10, CHUNK_SIZE);
+        try {
+            for (int i = 0; i < rows; i++)
+                buffer.add(new Object[] {i, "row " + i, BigDecimal.valueOf(i, 2)});
+            Path file = buffer.getFile();
+            check(file != null, "rows spill into a file");
+
+            check(buffer.size() == rows, "row count");
+            check(Arrays.equals(buffer.get(rows - 1), new Object[] {rows - 1, "row " + (rows - 1), BigDecimal.valueOf(rows - 1, 2)}),
+                    "last row from file");
+            int index = 0;
+            for (Object[] row : buffer)
+                check(row[0].equals(index++), "sequential row " + index);
+
+            buffer.close();
+            check(!Files.exists(file), "close removes the file");
+        } finally {
+            buffer.close();
+        }
+    }
+
+    private static void unsupportedTypeIsRejected() {
+        for (int heapRows : new int[] {0, 1}) {
+            try (RowBuffer buffer = new RowBuffer(1, heapRows, 0)) {
+                buffer.add(new Object[] {new Object()});
+                throw new AssertionError("unsupported type accepted with " + heapRows + " heap rows");
+            } catch (IOException e) {
+                check(e.getMessage().startsWith("Unsupported value type"), "unsupported type message");
+            }
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+
+}